@@ -71,11 +71,14 @@ import org.junit.jupiter.api.function.Executable;
  * <p>Every test case works by invoking the {@code main} method with the given <em>command line
  * arguments</em>, providing the content for the <em>standard input</em>, generating (and possibly
  * saving) the <em>actual output</em> that is finally compared with the <em>expected output</em>.
- * Every test is run for at most {@link #TIMEOUT} seconds.
+ * Every test is run for at most {@link #TIMEOUT} seconds, scaled by the {@link
+ * Calibration#factor() calibration factor} of the host running the tests (computed when the test is
+ * created, so that the calibration is not charged to any test case); such factor is reported once
+ * on the <em>standard error</em> and in the message of every failed test case.
  */
 public class BlackBoxTest {
 
-  /** The maximum duration of a test case, in seconds. */
+  /** The maximum duration of a test case on the reference machine, in seconds. */
   public static final Duration TIMEOUT = Duration.ofSeconds(10);
 
   /**
@@ -108,6 +111,8 @@ public class BlackBoxTest {
 
   private final Method main;
   private final Path path;
+  private final Duration timeout;
+  private final String calibration;
   private final List<DynamicTest> cases;
 
   private class Case implements Executable {
@@ -150,11 +155,14 @@ public class BlackBoxTest {
           | InvocationTargetException
           | IOException
           | UncheckedIOException e) {
-        fail("Error executing tests", e);
+        fail("Error executing tests (" + calibration + ")", e);
       }
       System.setIn(stdin);
       System.setOut(stdout);
-      assertIterableEquals(expected, trim(Arrays.stream(actual.toString().split("\n"))));
+      assertIterableEquals(
+          expected,
+          trim(Arrays.stream(actual.toString().split("\n"))),
+          () -> "Unexpected output (" + calibration + ")");
     }
   }
 
@@ -174,6 +182,8 @@ public class BlackBoxTest {
       throw new IllegalArgumentException(
           "Trying to produce test for " + clsPath + " outside of " + testsDir);
     this.path = clsPath;
+    this.timeout = Calibration.scale(TIMEOUT);
+    this.calibration = Calibration.describe();
     final String fqClsName = testsDir.relativize(clsPath).toString().replace(File.separator, ".");
     Method main = null;
     try {
@@ -204,7 +214,8 @@ public class BlackBoxTest {
                 dynamicTest(
                     name,
                     () -> {
-                      assertTimeoutPreemptively(TIMEOUT, tc);
+                      assertTimeoutPreemptively(
+                          timeout, tc, () -> "Timeout exceeded (" + calibration + ")");
                     }));
           } catch (IOException | UncheckedIOException e) {
             casesMap.put(
@@ -0,0 +1,324 @@
+/*
+
+Copyright 2025 Massimo Santini
+
+This file is part of jubbiot.
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This material is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this file.  If not, see <https://www.gnu.org/licenses/>.
+
+*/
+
+package it.unimi.di.prog2.jubbiot;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.OptionalDouble;
+import java.util.Properties;
+
+/**
+ * A class to normalize durations according to the speed of the host running the tests.
+ *
+ * <p>The <em>calibration factor</em> is the ratio between the time a deterministic benchmark takes
+ * on this host and the time it takes on the reference machine (that is {@link
+ * #DEFAULT_REFERENCE_DURATION}, unless the environment variable {@code JUBBIOT_REFERENCE} is set
+ * to a positive number of milliseconds), clamped between {@link #MIN_FACTOR} and {@link
+ * #MAX_FACTOR}; timeouts are hence never shortened with respect to the reference ones.
+ *
+ * <p>The measured time is cached in a file named following the {@link #CACHE_FORMAT} pattern (with
+ * the host name) in the {@code .jubbiot} directory of the user home, together with the Java
+ * version, the reference duration it was compared with, and the time of the measure; the benchmark
+ * is run again if any of them differs, or if the measure is older than {@link #CACHE_TTL} (or in
+ * the future). Concurrent JVMs on the same host take turns, using a lock file, so that only one of
+ * them runs the benchmark while the others wait and then read the cache.
+ *
+ * <p>If the environment variable {@code JUBBIOT_CALIBRATION} is set to a positive number, such
+ * value is used as the factor and neither the benchmark, nor the cache, are used. Invalid values of
+ * the environment variables are reported on the <em>standard error</em> and ignored.
+ *
+ * <p>The factor is computed the first time it is needed and reported once on the <em>standard
+ * error</em>; to avoid charging its cost to a <em>test case</em>, {@link BlackBoxTest} computes it
+ * when the test is created.
+ */
+public final class Calibration {
+
+  /**
+   * The default duration of the benchmark on the reference machine.
+   *
+   * <p>It is the best of 5 runs (after 2 warm-up runs) measured on a single vCPU x86-64 Linux
+   * virtual machine running Temurin OpenJDK 17.0.9+9 with the default JVM options (that is, with
+   * tiered compilation up to C2), rounded up; it is just a provisional value and teams sharing a
+   * fleet of hosts should agree on a reference machine and set the {@code JUBBIOT_REFERENCE}
+   * environment variable to the time (in milliseconds) of the benchmark on such machine, as
+   * reported on the <em>standard error</em> when the factor is computed there. Note that limiting
+   * the JIT (for instance with {@code -XX:TieredStopAtLevel=1}) makes the benchmark about 25%
+   * slower.
+   */
+  public static final Duration DEFAULT_REFERENCE_DURATION = Duration.ofMillis(200);
+
+  /** The minimum value of the <em>calibration factor</em>. */
+  public static final double MIN_FACTOR = 1;
+
+  /** The maximum value of the <em>calibration factor</em>. */
+  public static final double MAX_FACTOR = 10;
+
+  /** The maximum age of the cached benchmark time. */
+  public static final Duration CACHE_TTL = Duration.ofDays(1);
+
+  /**
+   * The format for the filename, in the {@code .jubbiot} directory of the user home, where the
+   * benchmark time of a given host is cached.
+   */
+  public static final String CACHE_FORMAT = "calibration-v3-%s.properties";
+
+  private static final int SIEVE_SIZE = 1 << 22;
+  private static final long SIEVE_CHECKSUM = 596946687124L;
+  private static final int SIEVES_PER_RUN = 8;
+  private static final int WARMUP_RUNS = 2;
+  private static final int MEASURED_RUNS = 5;
+
+  private static final String BEST_KEY = "best.nanos";
+  private static final String REFERENCE_KEY = "reference.nanos";
+  private static final String JAVA_KEY = "java.version";
+  private static final String TIME_KEY = "measured.at";
+
+  private record Result(double factor, String source) {
+    private String describe() {
+      return String.format(Locale.ROOT, "calibration factor %.2f from %s", factor, source);
+    }
+  }
+
+  private static final class Holder {
+    private static final Result RESULT = compute();
+  }
+
+  private Calibration() {}
+
+  /**
+   * Returns the <em>calibration factor</em> of this host.
+   *
+   * <p>Values greater than {@code 1} mean that this host is slower than the reference machine.
+   *
+   * @return the <em>calibration factor</em>.
+   */
+  public static double factor() {
+    return Holder.RESULT.factor();
+  }
+
+  /**
+   * Scales the given duration by the <em>calibration factor</em> of this host.
+   *
+   * @param duration the duration on the reference machine.
+   * @return the corresponding duration on this host.
+   */
+  public static Duration scale(final Duration duration) {
+    return scale(duration, factor());
+  }
+
+  /**
+   * Returns a short description of the <em>calibration factor</em> and of where it comes from,
+   * suitable for messages.
+   *
+   * @return the description.
+   */
+  public static String describe() {
+    return Holder.RESULT.describe();
+  }
+
+  static Duration scale(final Duration duration, final double factor) {
+    return Duration.ofNanos(Math.round(duration.toNanos() * factor));
+  }
+
+  static OptionalDouble parseOverride(final String value) {
+    if (value == null) return OptionalDouble.empty();
+    try {
+      final double parsed = Double.parseDouble(value.trim());
+      return parsed > 0 && Double.isFinite(parsed)
+          ? OptionalDouble.of(parsed)
+          : OptionalDouble.empty();
+    } catch (NumberFormatException e) {
+      return OptionalDouble.empty();
+    }
+  }
+
+  static double factorOf(final Duration best, final Duration reference) {
+    return Math.clamp((double) best.toNanos() / reference.toNanos(), MIN_FACTOR, MAX_FACTOR);
+  }
+
+  static Duration readCache(final Path cache, final Duration reference, final Instant now) {
+    final Properties props = new Properties();
+    try (Reader reader = Files.newBufferedReader(cache)) {
+      props.load(reader);
+      final long best = Long.parseLong(props.getProperty(BEST_KEY, ""));
+      final long ref = Long.parseLong(props.getProperty(REFERENCE_KEY, ""));
+      final Instant measured = Instant.parse(props.getProperty(TIME_KEY, ""));
+      if (best <= 0
+          || ref != reference.toNanos()
+          || !Runtime.version().toString().equals(props.getProperty(JAVA_KEY))
+          || measured.isAfter(now)
+          || measured.plus(CACHE_TTL).isBefore(now)) return null;
+      return Duration.ofNanos(best);
+    } catch (IOException | RuntimeException e) {
+      // missing, or invalid, cache
+      return null;
+    }
+  }
+
+  static void writeCache(
+      final Path cache, final Duration best, final Duration reference, final Instant now)
+      throws IOException {
+    final Properties props = new Properties();
+    props.setProperty(BEST_KEY, Long.toString(best.toNanos()));
+    props.setProperty(REFERENCE_KEY, Long.toString(reference.toNanos()));
+    props.setProperty(JAVA_KEY, Runtime.version().toString());
+    props.setProperty(TIME_KEY, now.toString());
+    final Path tmp = Files.createTempFile(cache.getParent(), "calibration-", ".tmp");
+    try {
+      try (Writer writer = Files.newBufferedWriter(tmp)) {
+        props.store(writer, "jubbiot calibration benchmark");
+      }
+      Files.move(tmp, cache, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static Result compute() {
+    try {
+      final Result result = calibrate();
+      System.err.println("jubbiot: " + result.describe());
+      return result;
+    } catch (RuntimeException e) {
+      // a timing helper must never prevent tests from running
+      return new Result(1, "default, calibration failed");
+    }
+  }
+
+  private static Result calibrate() {
+    final String factorEnv = System.getenv("JUBBIOT_CALIBRATION");
+    final OptionalDouble factor = parseOverride(factorEnv);
+    if (factor.isPresent()) return new Result(factor.getAsDouble(), "JUBBIOT_CALIBRATION");
+    String invalid = "";
+    if (factorEnv != null) {
+      warnInvalid("JUBBIOT_CALIBRATION", factorEnv);
+      invalid += ", invalid JUBBIOT_CALIBRATION ignored";
+    }
+    final String referenceEnv = System.getenv("JUBBIOT_REFERENCE");
+    final OptionalDouble referenceMillis = parseOverride(referenceEnv);
+    Duration reference = DEFAULT_REFERENCE_DURATION;
+    if (referenceMillis.isPresent())
+      reference = Duration.ofNanos(Math.round(referenceMillis.getAsDouble() * 1_000_000));
+    else if (referenceEnv != null) {
+      warnInvalid("JUBBIOT_REFERENCE", referenceEnv);
+      invalid += ", invalid JUBBIOT_REFERENCE ignored";
+    }
+    final Path cache = cachePath();
+    Duration best = readCache(cache, reference, Instant.now());
+    String source = "cache";
+    if (best == null) {
+      final Path lock = cache.resolveSibling(cache.getFileName() + ".lock");
+      try {
+        Files.createDirectories(cache.getParent());
+        try (FileChannel channel =
+            FileChannel.open(lock, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+          channel.lock(); // released when the channel is closed
+          // another JVM may have run the benchmark while we were waiting for the lock
+          best = readCache(cache, reference, Instant.now());
+          if (best == null) {
+            best = benchmark();
+            source = "benchmark";
+            if (best != null) writeCache(cache, best, reference, Instant.now());
+          }
+        }
+      } catch (IOException | UncheckedIOException | SecurityException e) {
+        // the cache is just an optimization
+        if (best == null) {
+          best = benchmark();
+          source = "benchmark";
+        }
+      }
+    }
+    if (best == null) return new Result(1, "default, benchmark failed" + invalid);
+    System.err.println(
+        String.format(
+            Locale.ROOT,
+            "jubbiot: benchmark time %.1f ms (reference %.1f ms)",
+            best.toNanos() / 1e6,
+            reference.toNanos() / 1e6));
+    return new Result(factorOf(best, reference), source + invalid);
+  }
+
+  private static void warnInvalid(final String name, final String value) {
+    System.err.println(
+        "jubbiot: ignoring invalid "
+            + name
+            + " value \""
+            + value
+            + "\" (a positive number, such as 1.5, is required)");
+  }
+
+  private static Path cachePath() {
+    String host = System.getenv("HOSTNAME");
+    if (host == null) host = System.getenv("COMPUTERNAME");
+    if (host == null)
+      try {
+        host = InetAddress.getLocalHost().getHostName();
+      } catch (UnknownHostException | SecurityException e) {
+        host = "localhost";
+      }
+    return Paths.get(System.getProperty("user.home"), ".jubbiot")
+        .resolve(String.format(CACHE_FORMAT, host.replaceAll("[^A-Za-z0-9.-]", "_")));
+  }
+
+  private static Duration benchmark() {
+    for (int r = 0; r < WARMUP_RUNS; r++) if (!sieves()) return null;
+    long best = Long.MAX_VALUE;
+    for (int r = 0; r < MEASURED_RUNS; r++) {
+      final long start = System.nanoTime();
+      final boolean valid = sieves();
+      best = Math.min(best, System.nanoTime() - start);
+      if (!valid) return null;
+    }
+    return Duration.ofNanos(best);
+  }
+
+  private static boolean sieves() {
+    boolean valid = true;
+    for (int s = 0; s < SIEVES_PER_RUN; s++) valid &= sieve() == SIEVE_CHECKSUM;
+    return valid;
+  }
+
+  private static long sieve() {
+    final boolean[] composite = new boolean[SIEVE_SIZE];
+    long sum = 0;
+    for (int i = 2; i < SIEVE_SIZE; i++) {
+      if (composite[i]) continue;
+      sum += i;
+      for (long j = (long) i * i; j < SIEVE_SIZE; j += i) composite[(int) j] = true;
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+
+Copyright 2025 Massimo Santini
+
+This file is part of jubbiot.
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This material is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this file.  If not, see <https://www.gnu.org/licenses/>.
+
+*/
+
+package it.unimi.di.prog2.jubbiot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.OptionalDouble;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for the pure helpers of {@link Calibration}. */
+public class CalibrationTest {
+
+  private static final Duration REFERENCE = Duration.ofMillis(200);
+  private static final Duration BEST = Duration.ofMillis(300);
+  private static final Instant NOW = Instant.parse("2025-01-01T12:00:00Z");
+
+  @TempDir Path dir;
+
+  @Test
+  public void parseOverrideAcceptsPositiveNumbers() {
+    assertEquals(OptionalDouble.of(1.5), Calibration.parseOverride("1.5"));
+    assertEquals(OptionalDouble.of(2), Calibration.parseOverride(" 2 "));
+  }
+
+  @Test
+  public void parseOverrideRejectsInvalidValues() {
+    for (String value : new String[] {null, "", "0", "-1", "1,5", "abc", "NaN", "Infinity"})
+      assertTrue(Calibration.parseOverride(value).isEmpty(), "Accepted \"" + value + "\"");
+  }
+
+  @Test
+  public void factorOfIsTheRatioToTheReference() {
+    assertEquals(1.5, Calibration.factorOf(BEST, REFERENCE));
+  }
+
+  @Test
+  public void factorOfIsClamped() {
+    assertEquals(Calibration.MIN_FACTOR, Calibration.factorOf(Duration.ofMillis(1), REFERENCE));
+    assertEquals(Calibration.MAX_FACTOR, Calibration.factorOf(Duration.ofHours(1), REFERENCE));
+  }
+
+  @Test
+  public void scaleMultipliesByTheFactor() {
+    assertEquals(Duration.ofSeconds(15), Calibration.scale(Duration.ofSeconds(10), 1.5));
+  }
+
+  @Test
+  public void readCacheReturnsWrittenTime() throws IOException {
+    final Path cache = dir.resolve("cache.properties");
+    Calibration.writeCache(cache, BEST, REFERENCE, NOW);
+    assertEquals(BEST, Calibration.readCache(cache, REFERENCE, NOW.plusSeconds(60)));
+  }
+
+  @Test
+  public void readCacheRejectsMissingFile() {
+    assertNull(Calibration.readCache(dir.resolve("missing.properties"), REFERENCE, NOW));
+  }
+
+  @Test
+  public void readCacheRejectsMalformedFile() throws IOException {
+    final Path cache = dir.resolve("cache.properties");
+    Files.writeString(cache, "best.nanos=fast\n");
+    assertNull(Calibration.readCache(cache, REFERENCE, NOW));
+  }
+
+  @Test
+  public void readCacheRejectsDifferentReference() throws IOException {
+    final Path cache = dir.resolve("cache.properties");
+    Calibration.writeCache(cache, BEST, REFERENCE, NOW);
+    assertNull(Calibration.readCache(cache, REFERENCE.plusMillis(1), NOW));
+  }
+
+  @Test
+  public void readCacheRejectsDifferentJavaVersion() throws IOException {
+    final Path cache = dir.resolve("cache.properties");
+    Calibration.writeCache(cache, BEST, REFERENCE, NOW);
+    Files.writeString(
+        cache, Files.readString(cache).replaceAll("java\\.version=.*", "java.version=1.0"));
+    assertNull(Calibration.readCache(cache, REFERENCE, NOW));
+  }
+
+  @Test
+  public void readCacheRejectsExpiredTime() throws IOException {
+    final Path cache = dir.resolve("cache.properties");
+    Calibration.writeCache(cache, BEST, REFERENCE, NOW);
+    assertNull(
+        Calibration.readCache(cache, REFERENCE, NOW.plus(Calibration.CACHE_TTL).plusSeconds(1)));
+  }
+
+  @Test
+  public void readCacheRejectsFutureTime() throws IOException {
+    final Path cache = dir.resolve("cache.properties");
+    Calibration.writeCache(cache, BEST, REFERENCE, NOW);
+    assertNull(Calibration.readCache(cache, REFERENCE, NOW.minusSeconds(1)));
+  }
+
+  @Test
+  public void writeCacheLeavesNoTemporaryFiles() throws IOException {
+    final Path cache = dir.resolve("cache.properties");
+    Calibration.writeCache(cache, BEST, REFERENCE, NOW);
+    Calibration.writeCache(cache, BEST, REFERENCE, NOW);
+    try (Stream<Path> files = Files.list(dir)) {
+      assertEquals(1, files.count());
+    }
+  }
+}